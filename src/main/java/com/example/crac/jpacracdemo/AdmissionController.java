@@ -0,0 +1,331 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.crac.jpacracdemo;
+
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
+
+/**
+ * Admission layer in front of the connection pool. Callers are admitted up to an adaptive concurrency limit and
+ * otherwise queued per {@link Priority}, with higher priorities always served first. {@link Priority#BACKGROUND} work
+ * is restricted to half of the limit so it cannot crowd out interactive callers.
+ * <p>
+ * The limit follows the Vegas approach: the ratio between the lowest and the current smoothed connection hold time
+ * estimates the number of requests queueing up in the database. The limit grows while that estimate stays below
+ * {@link #ALPHA} and shrinks once it exceeds {@link #BETA}. The minimum decays towards the smoothed hold time by
+ * {@link #MIN_RTT_DECAY} per release, slow enough that sustained overload keeps counting as congestion for hundreds of
+ * thousands of releases while a permanently shifted workload mix is eventually followed. {@link #reset()} drops it
+ * right away. Acquire timeouts of callers held back by the overall limit further cut the limit multiplicatively.
+ * <p>
+ * A caller is rejected right away if the expected queue wait exceeds the budget of its priority instead of blocking
+ * until the pool times out.
+ *
+ * @author Christoph Strobl
+ * @since 2023/06
+ */
+class AdmissionController {
+
+	private static final ThreadLocal<Priority> PRIORITY = new ThreadLocal<>();
+
+	private static final int ALPHA = 3;
+	private static final int BETA = 6;
+	private static final int MIN_LIMIT = 1;
+	private static final double RTT_SMOOTHING = 0.05d;
+	private static final double MIN_RTT_DECAY = 0.00001d;
+	private static final double BACKGROUND_SHARE = 0.5d;
+
+	private final IntSupplier maxLimit;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Map<Priority, ArrayDeque<Waiter>> queues = new EnumMap<>(Priority.class);
+	private final Map<Priority, Long> queueBudgets = new EnumMap<>(Priority.class);
+
+	private int inFlight;
+	private double limit;
+	private double minRtt = Double.MAX_VALUE;
+	private double smoothedRtt;
+
+	/**
+	 * @param maxLimit upper bound for the concurrency limit, typically the maximum pool size.
+	 * @param queueBudgetMs maximum expected queue wait for {@link Priority#NORMAL} callers.
+	 *          {@link Priority#BACKGROUND} gets a quarter of it, {@link Priority#CRITICAL} callers are never rejected
+	 *          upfront.
+	 */
+	AdmissionController(IntSupplier maxLimit, long queueBudgetMs) {
+
+		this.maxLimit = maxLimit;
+		for (Priority priority : Priority.values()) {
+			queues.put(priority, new ArrayDeque<>());
+		}
+		setQueueBudget(queueBudgetMs);
+		reset();
+	}
+
+	/**
+	 * Run the given {@link Callable} with the {@link Priority} applied to all connections obtained on the current thread.
+	 */
+	static <T> T withPriority(Priority priority, Callable<T> callable) throws Exception {
+
+		Priority previous = PRIORITY.get();
+		PRIORITY.set(priority);
+		try {
+			return callable.call();
+		} finally {
+			if (previous != null) {
+				PRIORITY.set(previous);
+			} else {
+				PRIORITY.remove();
+			}
+		}
+	}
+
+	static Priority currentPriority() {
+
+		Priority priority = PRIORITY.get();
+		return priority != null ? priority : Priority.NORMAL;
+	}
+
+	void setQueueBudget(long queueBudgetMs) {
+
+		lock.lock();
+		try {
+			queueBudgets.put(Priority.CRITICAL, Long.MAX_VALUE);
+			queueBudgets.put(Priority.NORMAL, TimeUnit.MILLISECONDS.toNanos(queueBudgetMs));
+			queueBudgets.put(Priority.BACKGROUND, TimeUnit.MILLISECONDS.toNanos(queueBudgetMs) / 4);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Restart with a conservative limit, eg. when the pool is still filling up after a restore, and forget about previous
+	 * hold times which might not be representative anymore.
+	 */
+	void reset() {
+
+		lock.lock();
+		try {
+			limit = Math.max(MIN_LIMIT, maxLimit.getAsInt() / 2);
+			minRtt = Double.MAX_VALUE;
+			smoothedRtt = 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Obtain admission for the given {@link Priority} waiting at most {@code timeoutMs}.
+	 *
+	 * @throws SQLTransientConnectionException if the caller is rejected or timed out.
+	 */
+	void acquire(Priority priority, long timeoutMs) throws SQLTransientConnectionException {
+
+		lock.lock();
+		try {
+
+			if (!hasWaitersAtOrAbove(priority) && inFlight < limitFor(priority)) {
+				inFlight++;
+				return;
+			}
+
+			long expectedWait = expectedQueueWait(priority);
+			if (expectedWait > queueBudgets.get(priority)) {
+				throw new SQLTransientConnectionException(
+						"Admission rejected for %s: expected queue wait of %dms exceeds budget (limit: %d, in flight: %d)"
+								.formatted(priority, TimeUnit.NANOSECONDS.toMillis(expectedWait), (int) limit, inFlight));
+			}
+
+			Waiter waiter = new Waiter(lock.newCondition());
+			queues.get(priority).addLast(waiter);
+
+			long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+			while (!waiter.admitted) {
+				if (remaining <= 0) {
+					queues.get(priority).remove(waiter);
+					// waiters held back only by the background share say nothing about the database being congested
+					if (inFlight >= limitFor(Priority.NORMAL)) {
+						limit = Math.max(MIN_LIMIT, limit * 0.9d);
+					}
+					throw new SQLTransientConnectionException(
+							"Admission timed out for %s after %dms".formatted(priority, timeoutMs));
+				}
+				try {
+					remaining = waiter.condition.awaitNanos(remaining);
+				} catch (InterruptedException e) {
+					queues.get(priority).remove(waiter);
+					if (waiter.admitted) {
+						release();
+					}
+					Thread.currentThread().interrupt();
+					throw new SQLTransientConnectionException("Interrupted while waiting for admission", e);
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Release admission without a latency sample, eg. when obtaining the connection failed.
+	 */
+	void release() {
+
+		lock.lock();
+		try {
+			inFlight--;
+			dispatch();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Release admission and feed the connection hold time into the limit calculation.
+	 */
+	void release(long rttNanos) {
+
+		lock.lock();
+		try {
+			inFlight--;
+			updateLimit(rttNanos);
+			dispatch();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	int getLimit() {
+
+		lock.lock();
+		try {
+			return (int) limit;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	int getInFlight() {
+
+		lock.lock();
+		try {
+			return inFlight;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	int getQueued() {
+
+		lock.lock();
+		try {
+			int queued = 0;
+			for (ArrayDeque<Waiter> queue : queues.values()) {
+				queued += queue.size();
+			}
+			return queued;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void updateLimit(long rtt) {
+
+		double sample = Math.max(rtt, 1);
+		smoothedRtt = smoothedRtt == 0 ? sample : smoothedRtt * (1 - RTT_SMOOTHING) + sample * RTT_SMOOTHING;
+		minRtt = Math.min(smoothedRtt, minRtt * (1 + MIN_RTT_DECAY));
+
+		double queueSize = limit * (1 - minRtt / smoothedRtt);
+		if (queueSize < ALPHA && inFlight + 1 >= limit / 2) {
+			limit = Math.min(maxLimit.getAsInt(), limit + 1);
+		} else if (queueSize > BETA) {
+			limit = Math.max(MIN_LIMIT, limit - 1);
+		}
+	}
+
+	private void dispatch() {
+
+		for (Priority priority : Priority.values()) {
+			ArrayDeque<Waiter> queue = queues.get(priority);
+			while (!queue.isEmpty() && inFlight < limitFor(priority)) {
+				Waiter waiter = queue.pollFirst();
+				waiter.admitted = true;
+				inFlight++;
+				waiter.condition.signal();
+			}
+			if (!queue.isEmpty()) {
+				return;
+			}
+		}
+	}
+
+	private int limitFor(Priority priority) {
+
+		int current = Math.max(MIN_LIMIT, (int) limit);
+		return priority == Priority.BACKGROUND ? Math.max(MIN_LIMIT, (int) (current * BACKGROUND_SHARE)) : current;
+	}
+
+	private boolean hasWaitersAtOrAbove(Priority priority) {
+
+		for (Priority candidate : Priority.values()) {
+			if (!queues.get(candidate).isEmpty()) {
+				return true;
+			}
+			if (candidate == priority) {
+				break;
+			}
+		}
+		return false;
+	}
+
+	private long expectedQueueWait(Priority priority) {
+
+		if (smoothedRtt == 0) {
+			return 0;
+		}
+
+		int ahead = 0;
+		for (Priority candidate : Priority.values()) {
+			ahead += queues.get(candidate).size();
+			if (candidate == priority) {
+				break;
+			}
+		}
+		return (long) ((ahead + 1) * smoothedRtt / limitFor(priority));
+	}
+
+	/**
+	 * Priority classes in descending order.
+	 */
+	enum Priority {
+		CRITICAL, NORMAL, BACKGROUND
+	}
+
+	private static class Waiter {
+
+		final Condition condition;
+		boolean admitted;
+
+		Waiter(Condition condition) {
+			this.condition = condition;
+		}
+	}
+}
@@ -16,26 +16,41 @@
 package com.example.crac.jpacracdemo;
 
 import javax.sql.DataSource;
+import java.sql.SQLTransientConnectionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import com.example.crac.jpacracdemo.AdmissionController.Priority;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.SmartLifecycle;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 import org.springframework.context.support.DefaultLifecycleProcessor;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Component;
 
 /**
+ * Periodically reads all {@link Person persons}. Disabled via {@code infinite-reader.enabled=false}, eg. for the soak
+ * test where its {@code findAll} would skew the measured workload.
+ *
  * @author Christoph Strobl
  * @since 2023/06
  */
 @Component
+@ConditionalOnProperty(prefix = "infinite-reader", name = "enabled", havingValue = "true", matchIfMissing = true)
 public class InfiniteReader implements CommandLineRunner, SmartLifecycle {
 
+	static final long POLL_INTERVAL = 2000;
+	static final long MAX_BACKOFF = 30_000;
+
+	Logger logger = LoggerFactory.getLogger(InfiniteReader.class);
 	PersonRepository repository;
 	AtomicBoolean run = new AtomicBoolean(false);
 	DataSource dataSource;
 	ApplicationContext ctx;
+	Person person;
 
 	public InfiniteReader(PersonRepository repository, DataSource dataSource, ApplicationContext ctx) {
 		this.repository = repository;
@@ -50,9 +65,16 @@ public class InfiniteReader implements CommandLineRunner, SmartLifecycle {
 //		processor.setBeanFactory(((AnnotationConfigApplicationContext) ctx).getBeanFactory());
 //		processor.stop();
 
+		long delay = POLL_INTERVAL;
 		while (isRunning()) {
-			System.out.println(repository.findAll());
-			Thread.sleep(2000);
+			try {
+				System.out.println(AdmissionController.withPriority(Priority.BACKGROUND, repository::findAll));
+				delay = POLL_INTERVAL;
+			} catch (DataAccessException | SQLTransientConnectionException e) {
+				delay = Math.min(delay * 2, MAX_BACKOFF);
+				logger.warn("background read failed - retrying in %sms: %s".formatted(delay, e.getMessage()));
+			}
+			Thread.sleep(delay);
 		}
 	}
 
@@ -61,10 +83,11 @@ public class InfiniteReader implements CommandLineRunner, SmartLifecycle {
 
 		try {
 
-			Person person = new Person();
-			person.id = "id-1";
-			person.name = "me";
-			repository.save(person);
+			if (person == null) {
+				person = new Person();
+				person.name = "me";
+			}
+			person = repository.save(person);
 
 			System.out.println("saved: " + person);
 
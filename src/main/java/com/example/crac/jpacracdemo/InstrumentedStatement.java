@@ -0,0 +1,535 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.crac.jpacracdemo;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+
+import com.example.crac.jpacracdemo.JdbcStatistics.StatementStatistics;
+import org.springframework.lang.Nullable;
+
+/**
+ * {@link Statement} recording execution times, errors and, via {@link InstrumentedResultSet}, fetched rows of the SQL
+ * shape it executes. Recording takes two {@link System#nanoTime()} calls and a histogram update, the only allocation
+ * per execution is the {@link InstrumentedResultSet} wrapping a returned {@link ResultSet}. Rows of a result set closed
+ * implicitly, by closing the statement, moving to the next result or executing again, are reported right then.
+ *
+ * @author Christoph Strobl
+ * @since 2023/06
+ */
+class InstrumentedStatement<S extends Statement> implements Statement {
+
+	final S delegate;
+	final InstrumentedConnection connection;
+	final JdbcStatistics statistics;
+	@Nullable StatementStatistics current;
+	@Nullable InstrumentedResultSet lastResultSet;
+
+	InstrumentedStatement(S delegate, InstrumentedConnection connection, JdbcStatistics statistics,
+			@Nullable StatementStatistics prepared) {
+
+		this.delegate = delegate;
+		this.connection = connection;
+		this.statistics = statistics;
+		this.current = prepared;
+	}
+
+	StatementStatistics shape(String sql) {
+
+		current = statistics.statement(sql);
+		return current;
+	}
+
+	static void record(@Nullable StatementStatistics statistics, long start, boolean success) {
+
+		if (statistics == null) {
+			return;
+		}
+		if (success) {
+			statistics.recordExecution(System.nanoTime() - start);
+		} else {
+			statistics.recordError();
+		}
+	}
+
+	@Nullable
+	ResultSet resultSet(@Nullable ResultSet resultSet, @Nullable StatementStatistics statistics) {
+
+		if (lastResultSet != null && lastResultSet.delegate == resultSet) {
+			return lastResultSet;
+		}
+		flushRows();
+		if (resultSet == null || statistics == null) {
+			return resultSet;
+		}
+		lastResultSet = new InstrumentedResultSet(resultSet, this, statistics);
+		return lastResultSet;
+	}
+
+	private void flushRows() {
+
+		if (lastResultSet != null) {
+			lastResultSet.flushRows();
+			lastResultSet = null;
+		}
+	}
+
+	@Override
+	public ResultSet executeQuery(String sql) throws SQLException {
+
+		StatementStatistics statistics = shape(sql);
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			ResultSet resultSet = delegate.executeQuery(sql);
+			success = true;
+			return resultSet(resultSet, statistics);
+		} finally {
+			record(statistics, start, success);
+		}
+	}
+
+	@Override
+	public int executeUpdate(String sql) throws SQLException {
+
+		StatementStatistics statistics = shape(sql);
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			int result = delegate.executeUpdate(sql);
+			success = true;
+			return result;
+		} finally {
+			record(statistics, start, success);
+		}
+	}
+
+	@Override
+	public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+
+		StatementStatistics statistics = shape(sql);
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			int result = delegate.executeUpdate(sql, autoGeneratedKeys);
+			success = true;
+			return result;
+		} finally {
+			record(statistics, start, success);
+		}
+	}
+
+	@Override
+	public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+
+		StatementStatistics statistics = shape(sql);
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			int result = delegate.executeUpdate(sql, columnIndexes);
+			success = true;
+			return result;
+		} finally {
+			record(statistics, start, success);
+		}
+	}
+
+	@Override
+	public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+
+		StatementStatistics statistics = shape(sql);
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			int result = delegate.executeUpdate(sql, columnNames);
+			success = true;
+			return result;
+		} finally {
+			record(statistics, start, success);
+		}
+	}
+
+	@Override
+	public long executeLargeUpdate(String sql) throws SQLException {
+
+		StatementStatistics statistics = shape(sql);
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			long result = delegate.executeLargeUpdate(sql);
+			success = true;
+			return result;
+		} finally {
+			record(statistics, start, success);
+		}
+	}
+
+	@Override
+	public long executeLargeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+
+		StatementStatistics statistics = shape(sql);
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			long result = delegate.executeLargeUpdate(sql, autoGeneratedKeys);
+			success = true;
+			return result;
+		} finally {
+			record(statistics, start, success);
+		}
+	}
+
+	@Override
+	public long executeLargeUpdate(String sql, int[] columnIndexes) throws SQLException {
+
+		StatementStatistics statistics = shape(sql);
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			long result = delegate.executeLargeUpdate(sql, columnIndexes);
+			success = true;
+			return result;
+		} finally {
+			record(statistics, start, success);
+		}
+	}
+
+	@Override
+	public long executeLargeUpdate(String sql, String[] columnNames) throws SQLException {
+
+		StatementStatistics statistics = shape(sql);
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			long result = delegate.executeLargeUpdate(sql, columnNames);
+			success = true;
+			return result;
+		} finally {
+			record(statistics, start, success);
+		}
+	}
+
+	@Override
+	public boolean execute(String sql) throws SQLException {
+
+		StatementStatistics statistics = shape(sql);
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			boolean result = delegate.execute(sql);
+			success = true;
+			return result;
+		} finally {
+			record(statistics, start, success);
+		}
+	}
+
+	@Override
+	public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+
+		StatementStatistics statistics = shape(sql);
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			boolean result = delegate.execute(sql, autoGeneratedKeys);
+			success = true;
+			return result;
+		} finally {
+			record(statistics, start, success);
+		}
+	}
+
+	@Override
+	public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+
+		StatementStatistics statistics = shape(sql);
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			boolean result = delegate.execute(sql, columnIndexes);
+			success = true;
+			return result;
+		} finally {
+			record(statistics, start, success);
+		}
+	}
+
+	@Override
+	public boolean execute(String sql, String[] columnNames) throws SQLException {
+
+		StatementStatistics statistics = shape(sql);
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			boolean result = delegate.execute(sql, columnNames);
+			success = true;
+			return result;
+		} finally {
+			record(statistics, start, success);
+		}
+	}
+
+	@Override
+	public void addBatch(String sql) throws SQLException {
+
+		shape(sql);
+		delegate.addBatch(sql);
+	}
+
+	@Override
+	public int[] executeBatch() throws SQLException {
+
+		StatementStatistics statistics = current;
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			int[] result = delegate.executeBatch();
+			success = true;
+			return result;
+		} finally {
+			record(statistics, start, success);
+		}
+	}
+
+	@Override
+	public long[] executeLargeBatch() throws SQLException {
+
+		StatementStatistics statistics = current;
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			long[] result = delegate.executeLargeBatch();
+			success = true;
+			return result;
+		} finally {
+			record(statistics, start, success);
+		}
+	}
+
+	@Override
+	public ResultSet getResultSet() throws SQLException {
+		return resultSet(delegate.getResultSet(), current);
+	}
+
+	@Override
+	public Connection getConnection() {
+		return connection;
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		return iface.isInstance(this) ? iface.cast(this) : delegate.unwrap(iface);
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this) || delegate.isWrapperFor(iface);
+	}
+
+	@Override
+	public void close() throws SQLException {
+
+		try {
+			delegate.close();
+		} finally {
+			flushRows();
+		}
+	}
+
+	@Override
+	public int getMaxFieldSize() throws SQLException {
+		return delegate.getMaxFieldSize();
+	}
+
+	@Override
+	public void setMaxFieldSize(int max) throws SQLException {
+		delegate.setMaxFieldSize(max);
+	}
+
+	@Override
+	public int getMaxRows() throws SQLException {
+		return delegate.getMaxRows();
+	}
+
+	@Override
+	public void setMaxRows(int max) throws SQLException {
+		delegate.setMaxRows(max);
+	}
+
+	@Override
+	public void setEscapeProcessing(boolean enable) throws SQLException {
+		delegate.setEscapeProcessing(enable);
+	}
+
+	@Override
+	public int getQueryTimeout() throws SQLException {
+		return delegate.getQueryTimeout();
+	}
+
+	@Override
+	public void setQueryTimeout(int seconds) throws SQLException {
+		delegate.setQueryTimeout(seconds);
+	}
+
+	@Override
+	public void cancel() throws SQLException {
+		delegate.cancel();
+	}
+
+	@Override
+	public SQLWarning getWarnings() throws SQLException {
+		return delegate.getWarnings();
+	}
+
+	@Override
+	public void clearWarnings() throws SQLException {
+		delegate.clearWarnings();
+	}
+
+	@Override
+	public void setCursorName(String name) throws SQLException {
+		delegate.setCursorName(name);
+	}
+
+	@Override
+	public int getUpdateCount() throws SQLException {
+		return delegate.getUpdateCount();
+	}
+
+	@Override
+	public boolean getMoreResults() throws SQLException {
+
+		flushRows();
+		return delegate.getMoreResults();
+	}
+
+	@Override
+	public void setFetchDirection(int direction) throws SQLException {
+		delegate.setFetchDirection(direction);
+	}
+
+	@Override
+	public int getFetchDirection() throws SQLException {
+		return delegate.getFetchDirection();
+	}
+
+	@Override
+	public void setFetchSize(int rows) throws SQLException {
+		delegate.setFetchSize(rows);
+	}
+
+	@Override
+	public int getFetchSize() throws SQLException {
+		return delegate.getFetchSize();
+	}
+
+	@Override
+	public int getResultSetConcurrency() throws SQLException {
+		return delegate.getResultSetConcurrency();
+	}
+
+	@Override
+	public int getResultSetType() throws SQLException {
+		return delegate.getResultSetType();
+	}
+
+	@Override
+	public void clearBatch() throws SQLException {
+		delegate.clearBatch();
+	}
+
+	@Override
+	public boolean getMoreResults(int current) throws SQLException {
+
+		if (current != KEEP_CURRENT_RESULT) {
+			flushRows();
+		}
+		return delegate.getMoreResults(current);
+	}
+
+	@Override
+	public ResultSet getGeneratedKeys() throws SQLException {
+		return delegate.getGeneratedKeys();
+	}
+
+	@Override
+	public int getResultSetHoldability() throws SQLException {
+		return delegate.getResultSetHoldability();
+	}
+
+	@Override
+	public boolean isClosed() throws SQLException {
+		return delegate.isClosed();
+	}
+
+	@Override
+	public void setPoolable(boolean poolable) throws SQLException {
+		delegate.setPoolable(poolable);
+	}
+
+	@Override
+	public boolean isPoolable() throws SQLException {
+		return delegate.isPoolable();
+	}
+
+	@Override
+	public void closeOnCompletion() throws SQLException {
+		delegate.closeOnCompletion();
+	}
+
+	@Override
+	public boolean isCloseOnCompletion() throws SQLException {
+		return delegate.isCloseOnCompletion();
+	}
+
+	@Override
+	public long getLargeUpdateCount() throws SQLException {
+		return delegate.getLargeUpdateCount();
+	}
+
+	@Override
+	public void setLargeMaxRows(long max) throws SQLException {
+		delegate.setLargeMaxRows(max);
+	}
+
+	@Override
+	public long getLargeMaxRows() throws SQLException {
+		return delegate.getLargeMaxRows();
+	}
+
+	@Override
+	public String enquoteLiteral(String val) throws SQLException {
+		return delegate.enquoteLiteral(val);
+	}
+
+	@Override
+	public String enquoteIdentifier(String identifier, boolean alwaysQuote) throws SQLException {
+		return delegate.enquoteIdentifier(identifier, alwaysQuote);
+	}
+
+	@Override
+	public boolean isSimpleIdentifier(String identifier) throws SQLException {
+		return delegate.isSimpleIdentifier(identifier);
+	}
+
+	@Override
+	public String enquoteNCharLiteral(String val) throws SQLException {
+		return delegate.enquoteNCharLiteral(val);
+	}
+}
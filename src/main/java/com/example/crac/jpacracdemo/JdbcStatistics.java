@@ -0,0 +1,190 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.crac.jpacracdemo;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Per SQL shape latency, row and error statistics plus connection acquire times collected by
+ * {@link InstrumentedConnection}. The SQL string handed to the driver serves as shape - Hibernate already renders bind
+ * markers, so literal values do not end up in there. The number of tracked shapes is capped, everything beyond is
+ * accounted for in {@link #OTHER}.
+ *
+ * @author Christoph Strobl
+ * @since 2023/06
+ */
+class JdbcStatistics implements JdbcStatisticsMBean {
+
+	static final int MAX_STATEMENT_SHAPES = 256;
+	static final String OTHER = "<other>";
+
+	private final Logger logger = LoggerFactory.getLogger(JdbcStatistics.class);
+
+	private final ConcurrentHashMap<String, StatementStatistics> statements = new ConcurrentHashMap<>();
+	private final LatencyHistogram connectionAcquire = new LatencyHistogram();
+
+	private ObjectName objectName;
+
+	StatementStatistics statement(String sql) {
+
+		StatementStatistics statistics = statements.get(sql);
+		if (statistics != null) {
+			return statistics;
+		}
+		if (statements.size() >= MAX_STATEMENT_SHAPES) {
+			return statements.computeIfAbsent(OTHER, StatementStatistics::new);
+		}
+		return statements.computeIfAbsent(sql, StatementStatistics::new);
+	}
+
+	void recordConnectionAcquire(long nanos) {
+		connectionAcquire.record(nanos);
+	}
+
+	Snapshot snapshot() {
+
+		List<StatementSnapshot> snapshots = statements.values().stream() //
+				.map(StatementStatistics::snapshot) //
+				.sorted(Comparator.comparingLong(StatementSnapshot::totalNanos).reversed()) //
+				.toList();
+		return new Snapshot(connectionAcquire.snapshot(), snapshots);
+	}
+
+	/**
+	 * Register as {@code com.example.crac.jpacracdemo:type=JdbcStatistics,pool=<poolName>} unless already registered.
+	 */
+	synchronized void register(String poolName) {
+
+		if (objectName != null) {
+			return;
+		}
+
+		try {
+			ObjectName name = new ObjectName(
+					"com.example.crac.jpacracdemo:type=JdbcStatistics,pool=%s".formatted(ObjectName.quote(poolName)));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+			objectName = name;
+		} catch (Exception e) {
+			logger.warn("Unable to register JdbcStatistics for pool %s".formatted(poolName), e);
+		}
+	}
+
+	/**
+	 * Unregister the MBean registered by {@link #register(String)}, if any.
+	 */
+	synchronized void unregister() {
+
+		if (objectName == null) {
+			return;
+		}
+
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+		} catch (Exception e) {
+			logger.warn("Unable to unregister %s".formatted(objectName), e);
+		} finally {
+			objectName = null;
+		}
+	}
+
+	@Override
+	public long getConnectionAcquireCount() {
+		return connectionAcquire.snapshot().count();
+	}
+
+	@Override
+	public double getConnectionAcquireP99Millis() {
+		return connectionAcquire.snapshot().percentile(99) / 1_000_000d;
+	}
+
+	@Override
+	public double getConnectionAcquireMaxMillis() {
+		return connectionAcquire.snapshot().max() / 1_000_000d;
+	}
+
+	@Override
+	public int getStatementShapeCount() {
+		return statements.size();
+	}
+
+	@Override
+	public String[] getStatementSummaries() {
+		return snapshot().statements().stream().map(StatementSnapshot::toString).toArray(String[]::new);
+	}
+
+	@Override
+	public void reset() {
+
+		connectionAcquire.reset();
+		statements.clear();
+	}
+
+	static class StatementStatistics {
+
+		final String sql;
+		final LatencyHistogram executions = new LatencyHistogram();
+		final LongAdder rows = new LongAdder();
+		final LongAdder errors = new LongAdder();
+
+		StatementStatistics(String sql) {
+			this.sql = sql;
+		}
+
+		void recordExecution(long nanos) {
+			executions.record(nanos);
+		}
+
+		void recordError() {
+			errors.increment();
+		}
+
+		void recordRows(long count) {
+			rows.add(count);
+		}
+
+		StatementSnapshot snapshot() {
+			return new StatementSnapshot(sql, executions.snapshot(), rows.sum(), errors.sum());
+		}
+	}
+
+	record StatementSnapshot(String sql, LatencyHistogram.Snapshot executions, long rows, long errors) {
+
+		long totalNanos() {
+			return executions.sum();
+		}
+
+		@Override
+		public String toString() {
+			return "%s [%s, rows=%d, errors=%d]".formatted(sql, executions, rows, errors);
+		}
+	}
+
+	record Snapshot(LatencyHistogram.Snapshot connectionAcquire, List<StatementSnapshot> statements) {
+
+	}
+}
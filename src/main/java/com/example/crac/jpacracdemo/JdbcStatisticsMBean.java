@@ -0,0 +1,37 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.crac.jpacracdemo;
+
+/**
+ * JMX view on {@link JdbcStatistics}. Durations are reported in milliseconds.
+ *
+ * @author Christoph Strobl
+ * @since 2023/06
+ */
+public interface JdbcStatisticsMBean {
+
+	long getConnectionAcquireCount();
+
+	double getConnectionAcquireP99Millis();
+
+	double getConnectionAcquireMaxMillis();
+
+	int getStatementShapeCount();
+
+	String[] getStatementSummaries();
+
+	void reset();
+}
@@ -23,6 +23,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 
 import com.zaxxer.hikari.HikariConfig;
@@ -37,11 +38,14 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.SmartLifecycle;
 import org.springframework.context.annotation.Bean;
+import org.springframework.lang.Nullable;
 import org.springframework.util.ReflectionUtils;
 
 @SpringBootApplication
+@EnableConfigurationProperties(LoadGeneratorProperties.class)
 public class JpaCracDemoApplication {
 
 	static volatile List<SocketImpl> allSockets = Collections.synchronizedList(new ArrayList<SocketImpl>());
@@ -104,9 +108,23 @@ public class JpaCracDemoApplication {
 
 		HikariDataSource delegate;
 
+		JdbcStatistics statistics;
+
+		AdmissionController admission;
+
+		long admissionQueueBudget = 1000;
+
+		MySqlPerformanceProfile performanceProfile;
+
+		int statementCachePrimeCount = 25;
+
 		@Override
 		public void start() {
 
+			if (admission != null) {
+				admission.reset();
+			}
+
 			if (delegate.getHikariPoolMXBean() instanceof HikariPool pool) {
 				if (pool.poolState == HikariPool.POOL_NORMAL) {
 					logger.info("hikariCP pool %s already started - nothing to to".formatted(delegate.getPoolName()));
@@ -121,6 +139,14 @@ public class JpaCracDemoApplication {
 				logger.info("hikariCP pool %s not found - initializing new".formatted(delegate.getPoolName()));
 				delegate = new HikariDataSource(delegate);
 			}
+
+			if (statistics != null) {
+				statistics.register(delegate.getPoolName());
+			}
+
+			if (performanceProfile != null) {
+				performanceProfile.prime(this::obtainPrimingConnection, Math.max(1, getMaximumPoolSize() / 4));
+			}
 		}
 
 		@Override
@@ -131,6 +157,12 @@ public class JpaCracDemoApplication {
 				System.out.println("%s: %s".formatted(impl, getState(impl)));
 			}
 
+			if (performanceProfile != null) {
+				performanceProfile.invalidate();
+				// the primer holds connections while obtaining the next one, let it release them before suspending the pool
+				performanceProfile.awaitPriming(getConnectionTimeout() + 1000);
+			}
+
 			if (delegate.getHikariPoolMXBean() instanceof HikariPool pool) {
 				if (delegate.isAllowPoolSuspension()) {
 
@@ -230,6 +262,179 @@ public class JpaCracDemoApplication {
 			this.delegate = delegate;
 		}
 
+		/**
+		 * Enable per SQL shape latency and row statistics as well as connection acquire timing. Statistics are exposed via
+		 * JMX as {@code com.example.crac.jpacracdemo:type=JdbcStatistics,pool=<poolName>} once {@link #start() started}
+		 * and via {@link #getStatementStatistics()}.
+		 *
+		 * @param enabled
+		 */
+		public void setStatementStatisticsEnabled(boolean enabled) {
+
+			if (enabled && statistics == null) {
+				statistics = new JdbcStatistics();
+			} else if (!enabled && statistics != null) {
+				statistics.unregister();
+				statistics = null;
+			}
+		}
+
+		public boolean isStatementStatisticsEnabled() {
+			return statistics != null;
+		}
+
+		/**
+		 * @return the current statistics snapshot or {@literal null} if statistics are not enabled.
+		 */
+		public JdbcStatistics.Snapshot getStatementStatistics() {
+			return statistics != null ? statistics.snapshot() : null;
+		}
+
+		/**
+		 * Apply the {@link MySqlPerformanceProfile} driver settings when connecting to MySQL. Handed out connections get
+		 * wrapped to record prepared statements, which are prepared again after a restart. Independent of
+		 * {@link #setStatementStatisticsEnabled(boolean) statement statistics}.
+		 *
+		 * @param enabled
+		 */
+		public void setMysqlPerformanceProfile(boolean enabled) {
+
+			if (!enabled) {
+				performanceProfile = null;
+				return;
+			}
+			if (!MySqlPerformanceProfile.supports(delegate)) {
+				logger.info("%s is not a MySQL url - skipping performance profile".formatted(delegate.getJdbcUrl()));
+				return;
+			}
+			if (performanceProfile == null) {
+				MySqlPerformanceProfile.applyDriverProperties(delegate);
+				performanceProfile = new MySqlPerformanceProfile(statementCachePrimeCount);
+			}
+		}
+
+		public boolean isMysqlPerformanceProfile() {
+			return performanceProfile != null;
+		}
+
+		/**
+		 * @param primeCount the number of most frequently executed statements to prepare again after a restart.
+		 */
+		public void setStatementCachePrimeCount(int primeCount) {
+
+			this.statementCachePrimeCount = primeCount;
+			if (performanceProfile != null) {
+				performanceProfile.setPrimeCount(primeCount);
+			}
+		}
+
+		public int getStatementCachePrimeCount() {
+			return statementCachePrimeCount;
+		}
+
+		/**
+		 * Put an {@link AdmissionController} in front of the pool that queues callers by
+		 * {@link AdmissionController.Priority} using an adaptive concurrency limit bound by the
+		 * {@link #getMaximumPoolSize() maximum pool size}.
+		 *
+		 * @param enabled
+		 */
+		public void setAdmissionControlEnabled(boolean enabled) {
+
+			if (enabled && admission == null) {
+				admission = new AdmissionController(this::getMaximumPoolSize, admissionQueueBudget);
+			} else if (!enabled) {
+				admission = null;
+			}
+		}
+
+		public boolean isAdmissionControlEnabled() {
+			return admission != null;
+		}
+
+		/**
+		 * @param queueBudgetMs the maximum expected queue wait for {@link AdmissionController.Priority#NORMAL} callers
+		 *          before they get rejected.
+		 */
+		public void setAdmissionQueueBudget(long queueBudgetMs) {
+
+			this.admissionQueueBudget = queueBudgetMs;
+			if (admission != null) {
+				admission.setQueueBudget(queueBudgetMs);
+			}
+		}
+
+		public long getAdmissionQueueBudget() {
+			return admissionQueueBudget;
+		}
+
+		/**
+		 * Obtain a connection for re-priming the statement cache as {@link AdmissionController.Priority#BACKGROUND} work
+		 * without recording its prepared statements as application usage.
+		 */
+		private Connection obtainPrimingConnection() throws Exception {
+			return AdmissionController.withPriority(AdmissionController.Priority.BACKGROUND,
+					() -> obtainConnection(this::obtainPoolConnection, null));
+		}
+
+		private Connection obtainPoolConnection(long timeoutMs) throws SQLException {
+
+			if (!delegate.isClosed() && delegate.getHikariPoolMXBean() instanceof HikariPool pool) {
+				return pool.getConnection(timeoutMs);
+			}
+			return delegate.getConnection();
+		}
+
+		private Connection obtainConnection(ConnectionSupplier supplier) throws SQLException {
+
+			MySqlPerformanceProfile performanceProfile = this.performanceProfile;
+			return obtainConnection(supplier, performanceProfile != null ? performanceProfile::recordPrepared : null);
+		}
+
+		private Connection obtainConnection(ConnectionSupplier supplier, @Nullable Consumer<String> onPrepare)
+				throws SQLException {
+
+			AdmissionController admission = this.admission;
+			long timeout = getConnectionTimeout();
+			if (admission != null) {
+				long queued = System.nanoTime();
+				admission.acquire(AdmissionController.currentPriority(), timeout);
+				timeout = Math.max(0, timeout - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - queued));
+			}
+
+			long start = System.nanoTime();
+			Connection connection;
+			try {
+				connection = supplier.get(timeout);
+			} catch (SQLException | RuntimeException e) {
+				if (admission != null) {
+					admission.release();
+				}
+				throw e;
+			}
+			long acquired = System.nanoTime();
+
+			JdbcStatistics statistics = this.statistics;
+			if (statistics != null) {
+				statistics.recordConnectionAcquire(acquired - start);
+			}
+			if (statistics == null && admission == null && onPrepare == null) {
+				return connection;
+			}
+
+			// only the time the connection is held feeds the limit, waiting in a suspended pool must not shrink it
+			return new InstrumentedConnection(connection, statistics, onPrepare,
+					admission != null ? () -> admission.release(System.nanoTime() - acquired) : null);
+		}
+
+		private interface ConnectionSupplier {
+
+			/**
+			 * @param timeoutMs the time left to obtain the connection after admission.
+			 */
+			Connection get(long timeoutMs) throws SQLException;
+		}
+
 		public void setMetricRegistry(Object metricRegistry) {
 			delegate.setMetricRegistry(metricRegistry);
 		}
@@ -251,10 +456,14 @@ public class JpaCracDemoApplication {
 		}
 
 		public void evictConnection(Connection connection) {
-			delegate.evictConnection(connection);
+			delegate.evictConnection(InstrumentedConnection.unwrap(connection));
 		}
 
 		public void close() {
+
+			if (statistics != null) {
+				statistics.unregister();
+			}
 			delegate.close();
 		}
 
@@ -548,12 +757,12 @@ public class JpaCracDemoApplication {
 
 		@Override
 		public Connection getConnection() throws SQLException {
-			return delegate.getConnection();
+			return obtainConnection(this::obtainPoolConnection);
 		}
 
 		@Override
 		public Connection getConnection(String username, String password) throws SQLException {
-			return delegate.getConnection(username, password);
+			return obtainConnection(timeout -> delegate.getConnection(username, password));
 		}
 
 		@Override
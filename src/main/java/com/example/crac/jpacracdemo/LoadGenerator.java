@@ -0,0 +1,323 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.crac.jpacracdemo;
+
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.example.crac.jpacracdemo.JpaCracDemoApplication.MyDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+/**
+ * Drives {@link PersonRepository} with a configurable read/write mix at a target rate while periodically suspending and
+ * resuming the {@link MyDataSource} the same way a checkpoint/restore would.
+ * <p>
+ * Requests are scheduled open loop: a dispatcher enqueues the intended start time of each request and
+ * {@link LoadGeneratorProperties#getClients() clients} pick them up. Latency is measured from the intended start, so
+ * time spent queueing behind a stalled datasource shows up in the numbers instead of being omitted. The backlog is
+ * bounded to {@link #MAX_BACKLOG_SECONDS} worth of requests, requests beyond are dropped and counted as errors. Latency
+ * percentiles, errors and the lowest per second throughput are reported for each cycle.
+ *
+ * @author Christoph Strobl
+ * @since 2023/06
+ */
+@Component
+@ConditionalOnProperty(prefix = "load-generator", name = "enabled", havingValue = "true")
+public class LoadGenerator implements SmartLifecycle {
+
+	static final int MAX_BACKLOG_SECONDS = 10;
+
+	private final Logger logger = LoggerFactory.getLogger(LoadGenerator.class);
+
+	private final PersonRepository repository;
+	private final MyDataSource dataSource;
+	private final LoadGeneratorProperties properties;
+
+	private final AtomicBoolean running = new AtomicBoolean(false);
+	private final AtomicReferenceArray<UUID> knownIds = new AtomicReferenceArray<>(1024);
+	private final AtomicLong writes = new AtomicLong();
+
+	private volatile Cycle cycle;
+	private ExecutorService clients;
+	private ScheduledExecutorService control;
+	private ScheduledExecutorService sampler;
+	private Thread dispatcher;
+
+	public LoadGenerator(PersonRepository repository, MyDataSource dataSource, LoadGeneratorProperties properties) {
+
+		this.repository = repository;
+		this.dataSource = dataSource;
+		this.properties = properties;
+	}
+
+	@Override
+	public void start() {
+
+		if (!running.compareAndSet(false, true)) {
+			return;
+		}
+
+		logger.info("starting load generator with %s clients at %s rps (read ratio: %s)".formatted(properties.getClients(),
+				properties.getTargetRps(), properties.getReadRatio()));
+
+		cycle = new Cycle(1, System.nanoTime());
+		BlockingQueue<Long> requests = new LinkedBlockingQueue<>(
+				Math.max(1, properties.getTargetRps()) * MAX_BACKLOG_SECONDS);
+
+		clients = newClientExecutor();
+		for (int i = 0; i < properties.getClients(); i++) {
+			clients.execute(() -> client(requests));
+		}
+
+		dispatcher = new Thread(() -> dispatch(requests), "load-generator-dispatcher");
+		dispatcher.setDaemon(true);
+		dispatcher.start();
+
+		// sampling on its own thread so it keeps ticking while a cycle blocks in stop()/start()
+		sampler = newScheduledExecutor("load-generator-sampler");
+		sampler.scheduleAtFixedRate(() -> cycle.sampleThroughput(System.nanoTime()), 1, 1, TimeUnit.SECONDS);
+
+		control = newScheduledExecutor("load-generator-control");
+		long interval = properties.getCycleInterval().toMillis();
+		if (interval > 0) {
+			control.scheduleWithFixedDelay(this::suspendResumeCycle, interval, interval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@Override
+	public void stop() {
+
+		if (!running.compareAndSet(true, false)) {
+			return;
+		}
+
+		control.shutdownNow();
+		sampler.shutdownNow();
+		dispatcher.interrupt();
+		clients.shutdownNow();
+		report(cycle);
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running.get();
+	}
+
+	private void dispatch(BlockingQueue<Long> requests) {
+
+		long interval = TimeUnit.SECONDS.toNanos(1) / Math.max(1, properties.getTargetRps());
+		long next = System.nanoTime();
+
+		while (isRunning() && !Thread.currentThread().isInterrupted()) {
+
+			long delay = next - System.nanoTime();
+			if (delay > 0) {
+				LockSupport.parkNanos(delay);
+				continue;
+			}
+			if (!requests.offer(next)) {
+				Cycle current = this.cycle;
+				current.dropped.increment();
+				current.errors.increment();
+			}
+			next += interval;
+		}
+	}
+
+	private void client(BlockingQueue<Long> requests) {
+
+		while (isRunning()) {
+
+			long intendedStart;
+			try {
+				intendedStart = requests.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+
+			Cycle current = this.cycle;
+			boolean read = ThreadLocalRandom.current().nextDouble() < properties.getReadRatio();
+			try {
+				if (read && read()) {
+					current.reads.record(System.nanoTime() - intendedStart);
+				} else {
+					write();
+					current.writes.record(System.nanoTime() - intendedStart);
+				}
+				current.completed.increment();
+			} catch (Exception e) {
+				current.errors.increment();
+				logger.debug("load generator request failed", e);
+			}
+		}
+	}
+
+	private boolean read() {
+
+		long written = writes.get();
+		if (written == 0) {
+			return false;
+		}
+
+		long slot = ThreadLocalRandom.current().nextLong(Math.min(written, knownIds.length()));
+		UUID id = knownIds.get((int) slot);
+		if (id == null) {
+			return false;
+		}
+		repository.findById(id);
+		return true;
+	}
+
+	private void write() {
+
+		Person person = new Person();
+		person.name = "load-" + writes.get();
+		person = repository.save(person);
+
+		long slot = writes.getAndIncrement() % knownIds.length();
+		knownIds.set((int) slot, person.getId());
+	}
+
+	private void suspendResumeCycle() {
+
+		Cycle previous = cycle;
+		cycle = new Cycle(previous.number + 1, System.nanoTime());
+		report(previous);
+
+		logger.info("cycle %s: stopping datasource".formatted(cycle.number));
+		long start = System.nanoTime();
+		try {
+			dataSource.stop();
+			TimeUnit.MILLISECONDS.sleep(properties.getCyclePause().toMillis());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (RuntimeException e) {
+			logger.error("cycle %s: stopping datasource failed".formatted(cycle.number), e);
+		} finally {
+			dataSource.start();
+		}
+		logger.info("cycle %s: datasource restarted after %sms".formatted(cycle.number,
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+	}
+
+	private void report(Cycle cycle) {
+		logger.info(cycle.report(properties.getTargetRps(), System.nanoTime()));
+	}
+
+	private static ScheduledExecutorService newScheduledExecutor(String name) {
+
+		return Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, name);
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Virtual threads where available (Java 21+), platform threads otherwise.
+	 */
+	private static ExecutorService newClientExecutor() {
+
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool(runnable -> {
+				Thread thread = new Thread(runnable, "load-generator-client");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	static class Cycle {
+
+		final int number;
+		final long started;
+		final LatencyHistogram reads = new LatencyHistogram();
+		final LatencyHistogram writes = new LatencyHistogram();
+		final LongAdder completed = new LongAdder();
+		final LongAdder errors = new LongAdder();
+		final LongAdder dropped = new LongAdder();
+
+		long lastCompleted;
+		long lastSampled;
+		long minThroughput = Long.MAX_VALUE;
+
+		/**
+		 * @param started {@link System#nanoTime()} the cycle started at.
+		 */
+		Cycle(int number, long started) {
+
+			this.number = number;
+			this.started = started;
+			this.lastSampled = started;
+		}
+
+		/**
+		 * Sample the throughput since the previous call scaled to one second. A cycle starts in between two ticks of the
+		 * sampler, so windows shorter than half a second are folded into the next one.
+		 */
+		synchronized void sampleThroughput(long now) {
+
+			long elapsed = now - lastSampled;
+			if (elapsed < TimeUnit.MILLISECONDS.toNanos(500)) {
+				return;
+			}
+
+			long total = completed.sum();
+			minThroughput = Math.min(minThroughput, (total - lastCompleted) * TimeUnit.SECONDS.toNanos(1) / elapsed);
+			lastCompleted = total;
+			lastSampled = now;
+		}
+
+		/**
+		 * Without a full sample, eg. for a cycle shorter than a second, the total count serves as minimum.
+		 */
+		synchronized String report(int targetRps, long now) {
+
+			double seconds = (now - started) / 1_000_000_000d;
+			long total = completed.sum();
+			return """
+					cycle %s (%.1fs):
+						throughput: %.1f/s avg, %s/s min (target: %s/s)
+						errors: %s (dropped: %s)
+						reads: %s
+						writes: %s
+					""".formatted(number, seconds, total / seconds, minThroughput(), targetRps, errors.sum(), dropped.sum(),
+					reads.snapshot(), writes.snapshot());
+		}
+
+		synchronized long minThroughput() {
+			return minThroughput == Long.MAX_VALUE ? completed.sum() : minThroughput;
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.crac.jpacracdemo;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration of the {@link LoadGenerator}.
+ *
+ * @author Christoph Strobl
+ * @since 2023/06
+ */
+@ConfigurationProperties(prefix = "load-generator")
+public class LoadGeneratorProperties {
+
+	/**
+	 * Whether to run the load generator.
+	 */
+	private boolean enabled;
+
+	/**
+	 * Number of concurrent clients.
+	 */
+	private int clients = 16;
+
+	/**
+	 * Requests per second issued independent of how fast previous requests complete.
+	 */
+	private int targetRps = 200;
+
+	/**
+	 * Share of reads, the remainder are writes.
+	 */
+	private double readRatio = 0.9d;
+
+	/**
+	 * Time between suspend/resume cycles of the datasource. Zero disables cycling.
+	 */
+	private Duration cycleInterval = Duration.ofSeconds(30);
+
+	/**
+	 * Time the datasource stays stopped within a cycle.
+	 */
+	private Duration cyclePause = Duration.ofSeconds(2);
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public int getClients() {
+		return clients;
+	}
+
+	public void setClients(int clients) {
+		this.clients = clients;
+	}
+
+	public int getTargetRps() {
+		return targetRps;
+	}
+
+	public void setTargetRps(int targetRps) {
+		this.targetRps = targetRps;
+	}
+
+	public double getReadRatio() {
+		return readRatio;
+	}
+
+	public void setReadRatio(double readRatio) {
+		this.readRatio = readRatio;
+	}
+
+	public Duration getCycleInterval() {
+		return cycleInterval;
+	}
+
+	public void setCycleInterval(Duration cycleInterval) {
+		this.cycleInterval = cycleInterval;
+	}
+
+	public Duration getCyclePause() {
+		return cyclePause;
+	}
+
+	public void setCyclePause(Duration cyclePause) {
+		this.cyclePause = cyclePause;
+	}
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.crac.jpacracdemo;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.zaxxer.hikari.HikariConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@code mysql-connector-j} driver settings enabling server side prepared statements with a client side statement
+ * cache, result set metadata caching and batch rewriting.
+ * <p>
+ * Server side statements are bound to the connection that prepared them, so they go away together with the
+ * connections evicted on {@link JpaCracDemoApplication.MyDataSource#stop() stop}. The profile counts the statements
+ * prepared via {@link #recordPrepared(String)}, {@link #invalidate()} remembers the most frequent ones at that point
+ * and {@link #prime(Callable, int)} prepares them again once the pool is back. Counts are halved on each
+ * {@link #invalidate()} so statements that fell out of use drop out of the ranking over a few cycles.
+ *
+ * @author Christoph Strobl
+ * @since 2023/06
+ */
+class MySqlPerformanceProfile {
+
+	static final Map<String, String> DRIVER_PROPERTIES;
+	static final int MAX_RECORDED_STATEMENTS = 256;
+
+	static {
+
+		Map<String, String> properties = new LinkedHashMap<>();
+		properties.put("useServerPrepStmts", "true");
+		properties.put("cachePrepStmts", "true");
+		properties.put("prepStmtCacheSize", "250");
+		properties.put("prepStmtCacheSqlLimit", "2048");
+		properties.put("cacheResultSetMetadata", "true");
+		properties.put("metadataCacheSize", "250");
+		properties.put("cacheServerConfiguration", "true");
+		properties.put("rewriteBatchedStatements", "true");
+		properties.put("maintainTimeStats", "false");
+		DRIVER_PROPERTIES = Map.copyOf(properties);
+	}
+
+	private final Logger logger = LoggerFactory.getLogger(MySqlPerformanceProfile.class);
+
+	private final ConcurrentHashMap<String, LongAdder> prepared = new ConcurrentHashMap<>();
+	private final ExecutorService primer = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "statement-cache-primer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private volatile int primeCount;
+	private volatile List<String> statementsToPrime = List.of();
+	private volatile CompletableFuture<Void> priming = CompletableFuture.completedFuture(null);
+
+	MySqlPerformanceProfile(int primeCount) {
+		this.primeCount = primeCount;
+	}
+
+	static boolean supports(HikariConfig config) {
+		return config.getJdbcUrl() != null && config.getJdbcUrl().startsWith("jdbc:mysql:");
+	}
+
+	/**
+	 * Add the {@link #DRIVER_PROPERTIES} to the given config, retaining values that have been set explicitly.
+	 */
+	static void applyDriverProperties(HikariConfig config) {
+		DRIVER_PROPERTIES.forEach(config.getDataSourceProperties()::putIfAbsent);
+	}
+
+	void setPrimeCount(int primeCount) {
+		this.primeCount = primeCount;
+	}
+
+	/**
+	 * Count a prepared statement. At most {@link #MAX_RECORDED_STATEMENTS} distinct statements are tracked.
+	 */
+	void recordPrepared(String sql) {
+
+		LongAdder count = prepared.get(sql);
+		if (count == null) {
+			if (prepared.size() >= MAX_RECORDED_STATEMENTS || !isPrimable(sql)) {
+				return;
+			}
+			count = prepared.computeIfAbsent(sql, key -> new LongAdder());
+		}
+		count.increment();
+	}
+
+	/**
+	 * Capture the statements to prepare again after the pool has been restarted, halve the recorded counts and cancel
+	 * priming still in progress. Use {@link #awaitPriming(long)} to wait for the primer to hand back its connections.
+	 */
+	void invalidate() {
+
+		Comparator<Map.Entry<String, LongAdder>> byCount = Comparator.comparingLong(entry -> entry.getValue().sum());
+
+		List<String> statements = prepared.entrySet().stream() //
+				.sorted(byCount.reversed()) //
+				.limit(primeCount) //
+				.map(Map.Entry::getKey) //
+				.toList();
+
+		prepared.forEach((sql, count) -> {
+			long halved = count.sumThenReset() / 2;
+			if (halved > 0) {
+				count.add(halved);
+			} else {
+				prepared.remove(sql, count);
+			}
+		});
+
+		logger.info("invalidated statement cache - %s statements to prime on restart".formatted(statements.size()));
+		this.statementsToPrime = statements;
+	}
+
+	/**
+	 * Wait for priming in progress to release its connections, eg. before suspending the pool they were taken from.
+	 */
+	void awaitPriming(long timeoutMs) {
+
+		try {
+			priming.get(timeoutMs, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException | TimeoutException e) {
+			logger.warn("priming statement cache did not finish within %sms".formatted(timeoutMs), e);
+		}
+	}
+
+	List<String> getStatementsToPrime() {
+		return statementsToPrime;
+	}
+
+	/**
+	 * Prepare the captured statements on up to {@code connections} connections obtained one after another from the
+	 * given source on a dedicated thread. Hikari hands a thread the connection it returned last, so primed connections
+	 * are held until priming is done to reach distinct ones - keep {@code connections} well below the pool size. Closing
+	 * a statement hands it over to the driver statement cache of the connection. Once {@link #invalidate() invalidated}
+	 * no further connection is obtained and the held ones are released.
+	 *
+	 * @param connectionSource should apply admission control and must not report back via
+	 *          {@link #recordPrepared(String)}, otherwise priming reinforces its own ranking.
+	 */
+	CompletableFuture<Void> prime(Callable<Connection> connectionSource, int connections) {
+
+		List<String> statements = this.statementsToPrime;
+		if (statements.isEmpty() || connections < 1) {
+			return CompletableFuture.completedFuture(null);
+		}
+
+		CompletableFuture<Void> priming = CompletableFuture.runAsync(() -> {
+
+			List<Connection> primed = new ArrayList<>(connections);
+			try {
+				while (primed.size() < connections && statements == this.statementsToPrime) {
+
+					Connection connection = connectionSource.call();
+					primed.add(connection);
+
+					for (String sql : statements) {
+						try (PreparedStatement statement = connection.prepareStatement(sql)) {
+							// closing returns the statement to the cache
+						} catch (SQLException e) {
+							logger.debug("failed to prime statement %s".formatted(sql), e);
+						}
+					}
+				}
+			} catch (Exception e) {
+				logger.info("priming statement cache stopped after %s connections: %s".formatted(primed.size(),
+						e.getMessage()));
+			} finally {
+				primed.forEach(this::close);
+			}
+			logger.info("primed %s statements on %s connections".formatted(statements.size(), primed.size()));
+		}, primer);
+		this.priming = priming;
+		return priming;
+	}
+
+	private void close(Connection connection) {
+
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			logger.debug("failed to release connection after priming", e);
+		}
+	}
+
+	private static boolean isPrimable(String sql) {
+
+		String statement = sql.stripLeading().toLowerCase(Locale.ROOT);
+		return statement.startsWith("select") || statement.startsWith("insert") || statement.startsWith("update")
+				|| statement.startsWith("delete");
+	}
+}
@@ -15,10 +15,18 @@
  */
 package com.example.crac.jpacracdemo;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 
+import java.util.UUID;
+
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
 /**
+ * {@link Person} identified by a client side generated {@link TimeOrderedId} stored as {@code BINARY(16)}.
+ *
  * @author Christoph Strobl
  * @since 2023/06
  */
@@ -26,15 +34,18 @@ import jakarta.persistence.Id;
 public class Person {
 
 	@Id
-	String id;
+	@TimeOrderedId
+	@JdbcTypeCode(SqlTypes.BINARY)
+	@Column(length = 16)
+	UUID id;
 
 	String name;
 
-	public String getId() {
+	public UUID getId() {
 		return id;
 	}
 
-	public void setId(String id) {
+	public void setId(UUID id) {
 		this.id = id;
 	}
 
@@ -45,4 +56,9 @@ public class Person {
 	public void setName(String name) {
 		this.name = name;
 	}
+
+	@Override
+	public String toString() {
+		return "Person{id=%s, name=%s}".formatted(id, name);
+	}
 }
@@ -1,11 +1,13 @@
 package com.example.crac.jpacracdemo;
 
+import java.util.UUID;
+
 import org.springframework.data.repository.ListCrudRepository;
 
 /**
  * @author Christoph Strobl
  * @since 2023/06
  */
-public interface PersonRepository extends ListCrudRepository<Person,String> {
+public interface PersonRepository extends ListCrudRepository<Person, UUID> {
 
 }
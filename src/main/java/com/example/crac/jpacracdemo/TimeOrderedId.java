@@ -0,0 +1,88 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.crac.jpacracdemo;
+
+import static java.lang.annotation.ElementType.*;
+import static java.lang.annotation.RetentionPolicy.*;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+import java.lang.reflect.Member;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.annotations.IdGeneratorType;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+
+/**
+ * Marks an {@link UUID} id attribute to be populated with a time ordered, UUIDv7 style, value generated on the client
+ * without a database round trip. The leading 48 bits hold the unix epoch millis followed by a 12 bit counter keeping
+ * ids monotonic within the same millisecond, the remaining 62 bits are random. Stored as {@code BINARY(16)} new ids
+ * end up at the right edge of the primary key index instead of being scattered across it. The string form is the
+ * canonical {@link UUID#toString()} representation, read back via {@link UUID#fromString(String)}.
+ *
+ * @author Christoph Strobl
+ * @since 2023/06
+ */
+@IdGeneratorType(TimeOrderedId.Generator.class)
+@Retention(RUNTIME)
+@Target({ FIELD, METHOD })
+public @interface TimeOrderedId {
+
+	/**
+	 * Generates time ordered {@link UUID UUIDs}.
+	 */
+	class Generator implements IdentifierGenerator {
+
+		private static final AtomicLong STATE = new AtomicLong();
+
+		public Generator(TimeOrderedId config, Member member, CustomIdGeneratorCreationContext context) {}
+
+		@Override
+		public Object generate(SharedSessionContractImplementor session, Object object) {
+			return next();
+		}
+
+		/**
+		 * @return a new time ordered {@link UUID}.
+		 */
+		public static UUID next() {
+			return next(STATE, System.currentTimeMillis());
+		}
+
+		/**
+		 * Advance the given state to the later of {@code epochMillis} and the previous value plus one. Once the 12 bit
+		 * counter overflows within a millisecond it carries into the timestamp, borrowing from the next millisecond.
+		 */
+		static UUID next(AtomicLong state, long epochMillis) {
+
+			long next;
+			long current;
+			do {
+				current = state.get();
+				long now = epochMillis << 12;
+				next = now > current ? now : current + 1;
+			} while (!state.compareAndSet(current, next));
+
+			long mostSigBits = ((next & ~0xFFFL) << 4) | 0x7000L | (next & 0xFFFL);
+			long leastSigBits = (ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+			return new UUID(mostSigBits, leastSigBits);
+		}
+	}
+}
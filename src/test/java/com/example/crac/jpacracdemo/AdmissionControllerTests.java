@@ -0,0 +1,247 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.crac.jpacracdemo;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+
+import com.example.crac.jpacracdemo.AdmissionController.Priority;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Christoph Strobl
+ * @since 2023/06
+ */
+class AdmissionControllerTests {
+
+	static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	@Test
+	void startsAtHalfTheMaximumLimit() {
+		assertThat(new AdmissionController(() -> 10, 1000).getLimit()).isEqualTo(5);
+	}
+
+	@Test
+	void growsLimitToMaximumWhileHoldTimeIsStable() throws Exception {
+
+		AdmissionController controller = new AdmissionController(() -> 10, 1000);
+
+		for (int round = 0; round < 20; round++) {
+			cycle(controller, MILLIS);
+		}
+
+		assertThat(controller.getLimit()).isEqualTo(10);
+	}
+
+	@Test
+	void growsLimitToMaximumForMixedWorkload() throws Exception {
+
+		AdmissionController controller = new AdmissionController(() -> 10, 1000);
+		Random random = new Random(42);
+
+		for (int round = 0; round < 500; round++) {
+			cycle(controller, () -> random.nextInt(10) == 0 ? 5 * MILLIS : MILLIS / 2);
+		}
+
+		assertThat(controller.getLimit()).isEqualTo(10);
+	}
+
+	@Test
+	void shrinksLimitWhenHoldTimeIncreases() throws Exception {
+
+		AdmissionController controller = new AdmissionController(() -> 10, 1000);
+		for (int round = 0; round < 20; round++) {
+			cycle(controller, MILLIS);
+		}
+
+		for (int round = 0; round < 20; round++) {
+			cycle(controller, 20 * MILLIS);
+		}
+
+		assertThat(controller.getLimit()).isLessThan(10);
+	}
+
+	@Test
+	void keepsLimitReducedUnderSustainedOverload() throws Exception {
+
+		AdmissionController controller = new AdmissionController(() -> 10, 1000);
+		for (int round = 0; round < 20; round++) {
+			cycle(controller, MILLIS);
+		}
+
+		// roughly 20k releases, more than a minute at the soak test rate
+		for (int round = 0; round < 3_000; round++) {
+			cycle(controller, 20 * MILLIS);
+			assertThat(controller.getLimit()).isLessThan(10);
+		}
+	}
+
+	@Test
+	void cutsLimitOnAdmissionTimeout() throws Exception {
+
+		AdmissionController controller = new AdmissionController(() -> 10, 1000);
+		for (int i = 0; i < 5; i++) {
+			controller.acquire(Priority.NORMAL, 100);
+		}
+
+		assertThatExceptionOfType(SQLTransientConnectionException.class)
+				.isThrownBy(() -> controller.acquire(Priority.CRITICAL, 10)).withMessageContaining("timed out");
+		assertThat(controller.getLimit()).isEqualTo(4);
+		assertThat(controller.getQueued()).isZero();
+	}
+
+	@Test
+	void keepsLimitWhenOnlyBackgroundShareIsExhausted() throws Exception {
+
+		AdmissionController controller = new AdmissionController(() -> 10, 1000);
+		for (int round = 0; round < 20; round++) {
+			cycle(controller, MILLIS);
+		}
+		for (int i = 0; i < 5; i++) {
+			controller.acquire(Priority.BACKGROUND, 100);
+		}
+
+		for (int i = 0; i < 8; i++) {
+			assertThatExceptionOfType(SQLTransientConnectionException.class)
+					.isThrownBy(() -> controller.acquire(Priority.BACKGROUND, 5)).withMessageContaining("timed out");
+		}
+
+		assertThat(controller.getLimit()).isEqualTo(10);
+		controller.acquire(Priority.NORMAL, 100);
+		assertThat(controller.getInFlight()).isEqualTo(6);
+	}
+
+	@Test
+	void rejectsRightAwayWhenExpectedWaitExceedsBudget() throws Exception {
+
+		AdmissionController controller = new AdmissionController(() -> 2, 10);
+		controller.acquire(Priority.NORMAL, 100);
+		controller.release(100 * MILLIS);
+
+		controller.acquire(Priority.NORMAL, 100);
+		controller.acquire(Priority.NORMAL, 100);
+
+		long start = System.nanoTime();
+		assertThatExceptionOfType(SQLTransientConnectionException.class)
+				.isThrownBy(() -> controller.acquire(Priority.NORMAL, 5_000)).withMessageContaining("rejected");
+		assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(1));
+	}
+
+	@Test
+	void restrictsBackgroundToHalfTheLimit() throws Exception {
+
+		AdmissionController controller = new AdmissionController(() -> 10, 1000);
+
+		controller.acquire(Priority.BACKGROUND, 100);
+		controller.acquire(Priority.BACKGROUND, 100);
+
+		assertThatExceptionOfType(SQLTransientConnectionException.class)
+				.isThrownBy(() -> controller.acquire(Priority.BACKGROUND, 10));
+		controller.acquire(Priority.NORMAL, 100);
+		assertThat(controller.getInFlight()).isEqualTo(3);
+	}
+
+	@Test
+	void admitsHigherPriorityFirst() throws Exception {
+
+		AdmissionController controller = new AdmissionController(() -> 2, 1000);
+		controller.acquire(Priority.NORMAL, 100);
+
+		List<Priority> admitted = new CopyOnWriteArrayList<>();
+		CompletableFuture<Void> background = CompletableFuture
+				.runAsync(() -> admit(controller, Priority.BACKGROUND, admitted));
+		await(() -> controller.getQueued() == 1);
+		CompletableFuture<Void> critical = CompletableFuture.runAsync(() -> admit(controller, Priority.CRITICAL, admitted));
+		await(() -> controller.getQueued() == 2);
+
+		controller.release();
+		critical.get(5, TimeUnit.SECONDS);
+		assertThat(admitted).containsExactly(Priority.CRITICAL);
+
+		controller.release();
+		background.get(5, TimeUnit.SECONDS);
+		assertThat(admitted).containsExactly(Priority.CRITICAL, Priority.BACKGROUND);
+	}
+
+	@Test
+	void resetRestoresConservativeLimit() throws Exception {
+
+		AdmissionController controller = new AdmissionController(() -> 10, 1000);
+		for (int round = 0; round < 20; round++) {
+			cycle(controller, MILLIS);
+		}
+
+		controller.reset();
+
+		assertThat(controller.getLimit()).isEqualTo(5);
+	}
+
+	@Test
+	void appliesPriorityToCurrentThreadOnly() throws Exception {
+
+		assertThat(AdmissionController.currentPriority()).isEqualTo(Priority.NORMAL);
+		assertThat(AdmissionController.withPriority(Priority.BACKGROUND, AdmissionController::currentPriority))
+				.isEqualTo(Priority.BACKGROUND);
+		assertThat(AdmissionController.currentPriority()).isEqualTo(Priority.NORMAL);
+	}
+
+	/**
+	 * Fill up the current limit and release all permits with the given hold time.
+	 */
+	private static void cycle(AdmissionController controller, long holdTime) throws SQLTransientConnectionException {
+		cycle(controller, () -> holdTime);
+	}
+
+	private static void cycle(AdmissionController controller, LongSupplier holdTimes)
+			throws SQLTransientConnectionException {
+
+		int limit = controller.getLimit();
+		for (int i = 0; i < limit; i++) {
+			controller.acquire(Priority.NORMAL, 100);
+		}
+		for (int i = 0; i < limit; i++) {
+			controller.release(holdTimes.getAsLong());
+		}
+	}
+
+	private static void admit(AdmissionController controller, Priority priority, List<Priority> admitted) {
+
+		try {
+			controller.acquire(priority, 5_000);
+			admitted.add(priority);
+		} catch (SQLTransientConnectionException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+
+		long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+		while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(5);
+		}
+		assertThat(condition.getAsBoolean()).isTrue();
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.crac.jpacracdemo;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Christoph Strobl
+ * @since 2023/06
+ */
+class InstrumentedStatementTests {
+
+	static final String QUERY = "select id from person where id < ?";
+
+	JdbcStatistics statistics = new JdbcStatistics();
+	Connection connection;
+
+	@BeforeEach
+	void setUp() throws SQLException {
+
+		connection = new InstrumentedConnection(
+				DriverManager.getConnection("jdbc:h2:mem:instrumented;DB_CLOSE_DELAY=-1"), statistics, null, null);
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("create table if not exists person (id int primary key)");
+			statement.execute("merge into person key (id) values (1), (2), (3)");
+		}
+		statistics.reset();
+	}
+
+	@AfterEach
+	void tearDown() throws SQLException {
+		connection.close();
+	}
+
+	@Test
+	void recordsRowsWhenResultSetIsClosed() throws SQLException {
+
+		try (PreparedStatement statement = connection.prepareStatement(QUERY)) {
+			statement.setInt(1, 10);
+			try (ResultSet resultSet = statement.executeQuery()) {
+				while (resultSet.next()) {}
+			}
+		}
+
+		assertThat(rows()).isEqualTo(3);
+	}
+
+	@Test
+	void recordsRowsWhenStatementClosesResultSet() throws SQLException {
+
+		PreparedStatement statement = connection.prepareStatement(QUERY);
+		statement.setInt(1, 10);
+		ResultSet resultSet = statement.executeQuery();
+		resultSet.next();
+		resultSet.next();
+
+		statement.close();
+
+		assertThat(rows()).isEqualTo(2);
+	}
+
+	@Test
+	void recordsRowsOnceWhenExecutedAgain() throws SQLException {
+
+		try (PreparedStatement statement = connection.prepareStatement(QUERY)) {
+
+			statement.setInt(1, 10);
+			ResultSet first = statement.executeQuery();
+			while (first.next()) {}
+
+			statement.setInt(1, 2);
+			ResultSet second = statement.executeQuery();
+			while (second.next()) {}
+			first.close();
+		}
+
+		assertThat(rows()).isEqualTo(4);
+	}
+
+	private long rows() {
+		return statistics.snapshot().statements().stream().filter(it -> it.sql().equals(QUERY))
+				.mapToLong(JdbcStatistics.StatementSnapshot::rows).sum();
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.crac.jpacracdemo;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import com.example.crac.jpacracdemo.JpaCracDemoApplication.MyDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares a prepared query against an in-memory H2 database with and without {@link InstrumentedConnection}, once on a
+ * plain connection and once including pool checkout through {@link MyDataSource} with statistics and admission control
+ * enabled. Run via {@link #main(String[])} after {@code mvn test-compile}.
+ *
+ * @author Christoph Strobl
+ * @since 2023/06
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JdbcInstrumentationBenchmark {
+
+	private static final String URL = "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1";
+	private static final String QUERY = "select id, name from person where id < ?";
+
+	Connection raw;
+	Connection instrumented;
+	HikariDataSource pool;
+	MyDataSource dataSource;
+
+	@Setup
+	public void setUp() throws SQLException {
+
+		raw = DriverManager.getConnection(URL);
+		try (Statement statement = raw.createStatement()) {
+			statement.execute("create table if not exists person (id int primary key, name varchar(255))");
+			for (int i = 0; i < 10; i++) {
+				statement.execute("merge into person key (id) values (%s, 'name-%s')".formatted(i, i));
+			}
+		}
+		instrumented = new InstrumentedConnection(DriverManager.getConnection(URL), new JdbcStatistics(), null, null);
+
+		pool = newPool("benchmark-raw");
+		HikariDataSource delegate = newPool("benchmark-instrumented");
+		dataSource = new MyDataSource(delegate);
+		dataSource.setStatementStatisticsEnabled(true);
+		dataSource.setAdmissionControlEnabled(true);
+	}
+
+	@TearDown
+	public void tearDown() throws SQLException {
+
+		instrumented.close();
+		raw.close();
+		dataSource.close();
+		pool.close();
+	}
+
+	@Benchmark
+	public long raw() throws SQLException {
+		return query(raw);
+	}
+
+	@Benchmark
+	public long instrumented() throws SQLException {
+		return query(instrumented);
+	}
+
+	@Benchmark
+	public long pooled() throws SQLException {
+
+		try (Connection connection = pool.getConnection()) {
+			return query(connection);
+		}
+	}
+
+	@Benchmark
+	public long pooledInstrumented() throws SQLException {
+
+		try (Connection connection = dataSource.getConnection()) {
+			return query(connection);
+		}
+	}
+
+	private static HikariDataSource newPool(String name) {
+
+		HikariDataSource pool = new HikariDataSource();
+		pool.setPoolName(name);
+		pool.setJdbcUrl(URL);
+		pool.setMaximumPoolSize(4);
+		return pool;
+	}
+
+	private static long query(Connection connection) throws SQLException {
+
+		try (PreparedStatement statement = connection.prepareStatement(QUERY)) {
+			statement.setInt(1, 10);
+			long length = 0;
+			try (ResultSet resultSet = statement.executeQuery()) {
+				while (resultSet.next()) {
+					length += resultSet.getString(2).length();
+				}
+			}
+			return length;
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(JdbcInstrumentationBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.crac.jpacracdemo;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Christoph Strobl
+ * @since 2023/06
+ */
+class LatencyHistogramTests {
+
+	@Test
+	void emptySnapshotReportsZero() {
+
+		LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+
+		assertThat(snapshot.count()).isZero();
+		assertThat(snapshot.mean()).isZero();
+		assertThat(snapshot.percentile(99)).isZero();
+	}
+
+	@Test
+	void recordsSmallValuesExactly() {
+
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < 32; i++) {
+			histogram.record(i);
+		}
+
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		assertThat(snapshot.count()).isEqualTo(32);
+		assertThat(snapshot.percentile(50)).isEqualTo(15);
+		assertThat(snapshot.max()).isEqualTo(31);
+	}
+
+	@Test
+	void percentilesStayWithinBucketPrecision() {
+
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 100_000; i++) {
+			histogram.record(i * 1_000L);
+		}
+
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		assertThat(snapshot.count()).isEqualTo(100_000);
+		assertThat(snapshot.percentile(50)).isCloseTo(50_000_000L, withinPercentage(3.2));
+		assertThat(snapshot.percentile(90)).isCloseTo(90_000_000L, withinPercentage(3.2));
+		assertThat(snapshot.percentile(99)).isCloseTo(99_000_000L, withinPercentage(3.2));
+		assertThat(snapshot.max()).isEqualTo(100_000_000L);
+		assertThat(snapshot.mean()).isCloseTo(50_000_500d, within(1d));
+	}
+
+	@Test
+	void percentileNeverExceedsMax() {
+
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(1_000_001);
+
+		assertThat(histogram.snapshot().percentile(100)).isEqualTo(1_000_001);
+	}
+
+	@Test
+	void clampsOutOfRangeValues() {
+
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(-1);
+		histogram.record(TimeUnit.HOURS.toNanos(1));
+
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		assertThat(snapshot.count()).isEqualTo(2);
+		assertThat(snapshot.percentile(1)).isZero();
+		assertThat(snapshot.max()).isEqualTo(TimeUnit.MINUTES.toNanos(15));
+	}
+
+	@Test
+	void resetClearsAllValues() {
+
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(42);
+		histogram.reset();
+
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		assertThat(snapshot.count()).isZero();
+		assertThat(snapshot.max()).isZero();
+	}
+}
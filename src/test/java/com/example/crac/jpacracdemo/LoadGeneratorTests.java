@@ -0,0 +1,80 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.crac.jpacracdemo;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+
+import com.example.crac.jpacracdemo.LoadGenerator.Cycle;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Christoph Strobl
+ * @since 2023/06
+ */
+class LoadGeneratorTests {
+
+	static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	@Test
+	void scalesThroughputToOneSecond() {
+
+		Cycle cycle = new Cycle(1, 0);
+
+		cycle.completed.add(200);
+		cycle.sampleThroughput(1_000 * MILLIS);
+		cycle.completed.add(300);
+		cycle.sampleThroughput(3_000 * MILLIS);
+
+		assertThat(cycle.minThroughput()).isEqualTo(150);
+	}
+
+	@Test
+	void foldsShortWindowIntoNextSample() {
+
+		Cycle cycle = new Cycle(1, 0);
+
+		cycle.completed.add(10);
+		cycle.sampleThroughput(300 * MILLIS);
+		assertThat(cycle.minThroughput()).isEqualTo(10);
+
+		cycle.completed.add(250);
+		cycle.sampleThroughput(1_300 * MILLIS);
+
+		assertThat(cycle.minThroughput()).isEqualTo(200);
+	}
+
+	@Test
+	void fallsBackToTotalWithoutFullSample() {
+
+		Cycle cycle = new Cycle(3, 0);
+		cycle.completed.add(42);
+
+		assertThat(cycle.minThroughput()).isEqualTo(42);
+		assertThat(cycle.report(200, 500 * MILLIS)).contains("cycle 3").contains("42/s min");
+	}
+
+	@Test
+	void reportsDroppedRequestsAsErrors() {
+
+		Cycle cycle = new Cycle(1, 0);
+		cycle.errors.add(5);
+		cycle.dropped.add(3);
+
+		assertThat(cycle.report(200, 1_000 * MILLIS)).contains("errors: 5 (dropped: 3)");
+	}
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.crac.jpacracdemo;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.sql.Connection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.zaxxer.hikari.HikariConfig;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Christoph Strobl
+ * @since 2023/06
+ */
+class MySqlPerformanceProfileTests {
+
+	JdbcDataSource dataSource;
+	AtomicInteger opened = new AtomicInteger();
+	AtomicInteger closed = new AtomicInteger();
+	List<String> primed = new CopyOnWriteArrayList<>();
+
+	@BeforeEach
+	void setUp() {
+
+		dataSource = new JdbcDataSource();
+		dataSource.setURL("jdbc:h2:mem:priming;DB_CLOSE_DELAY=-1");
+	}
+
+	@Test
+	void supportsMySqlUrlsOnly() {
+
+		HikariConfig config = new HikariConfig();
+		config.setJdbcUrl("jdbc:mysql://localhost:3306/crac");
+		assertThat(MySqlPerformanceProfile.supports(config)).isTrue();
+
+		config.setJdbcUrl("jdbc:h2:mem:crac");
+		assertThat(MySqlPerformanceProfile.supports(config)).isFalse();
+	}
+
+	@Test
+	void retainsExplicitDriverProperties() {
+
+		HikariConfig config = new HikariConfig();
+		config.getDataSourceProperties().put("prepStmtCacheSize", "500");
+
+		MySqlPerformanceProfile.applyDriverProperties(config);
+
+		assertThat(config.getDataSourceProperties()).containsEntry("prepStmtCacheSize", "500")
+				.containsEntry("useServerPrepStmts", "true");
+	}
+
+	@Test
+	void primesMostFrequentlyPreparedStatements() {
+
+		MySqlPerformanceProfile profile = new MySqlPerformanceProfile(2);
+		profile.recordPrepared("select * from person where id=?");
+		profile.recordPrepared("select * from person where id=?");
+		profile.recordPrepared("select * from person where id=?");
+		profile.recordPrepared("insert into person (name,id) values (?,?)");
+		profile.recordPrepared("insert into person (name,id) values (?,?)");
+		profile.recordPrepared("delete from person where id=?");
+
+		assertThat(profile.getStatementsToPrime()).isEmpty();
+
+		profile.invalidate();
+
+		assertThat(profile.getStatementsToPrime()).containsExactly("select * from person where id=?",
+				"insert into person (name,id) values (?,?)");
+	}
+
+	@Test
+	void ignoresStatementsThatCannotBePrimed() {
+
+		MySqlPerformanceProfile profile = new MySqlPerformanceProfile(10);
+		profile.recordPrepared("set session transaction read only");
+		profile.recordPrepared("  SELECT 1");
+
+		profile.invalidate();
+
+		assertThat(profile.getStatementsToPrime()).containsExactly("  SELECT 1");
+	}
+
+	@Test
+	void capsDistinctRecordedStatements() {
+
+		MySqlPerformanceProfile profile = new MySqlPerformanceProfile(Integer.MAX_VALUE);
+		for (int i = 0; i < MySqlPerformanceProfile.MAX_RECORDED_STATEMENTS + 10; i++) {
+			profile.recordPrepared("select * from person where id=" + i);
+		}
+
+		profile.invalidate();
+
+		assertThat(profile.getStatementsToPrime()).hasSize(MySqlPerformanceProfile.MAX_RECORDED_STATEMENTS);
+	}
+
+	@Test
+	void halvesCountsOnInvalidate() {
+
+		MySqlPerformanceProfile profile = new MySqlPerformanceProfile(10);
+		for (int i = 0; i < 4; i++) {
+			profile.recordPrepared("select 1");
+		}
+		profile.recordPrepared("select 2");
+
+		profile.invalidate();
+		assertThat(profile.getStatementsToPrime()).containsExactly("select 1", "select 2");
+
+		profile.invalidate();
+		assertThat(profile.getStatementsToPrime()).containsExactly("select 1");
+	}
+
+	@Test
+	void primesCapturedStatementsOnDistinctConnections() throws Exception {
+
+		MySqlPerformanceProfile profile = new MySqlPerformanceProfile(10);
+		profile.recordPrepared("select 1");
+		profile.recordPrepared("select 1");
+		profile.recordPrepared("select 2");
+		profile.invalidate();
+
+		profile.prime(this::connection, 2).get(5, TimeUnit.SECONDS);
+
+		assertThat(opened).hasValue(2);
+		assertThat(closed).hasValue(2);
+		assertThat(primed).containsExactly("select 1", "select 2", "select 1", "select 2");
+	}
+
+	@Test
+	void stopsPrimingOnceInvalidated() throws Exception {
+
+		MySqlPerformanceProfile profile = new MySqlPerformanceProfile(10);
+		profile.recordPrepared("select 1");
+		profile.invalidate();
+
+		profile.prime(() -> {
+			profile.invalidate();
+			return connection();
+		}, 3).get(5, TimeUnit.SECONDS);
+
+		assertThat(opened).hasValue(1);
+		assertThat(closed).hasValue(1);
+	}
+
+	@Test
+	void releasesConnectionsWhenObtainingTheNextOneFails() throws Exception {
+
+		MySqlPerformanceProfile profile = new MySqlPerformanceProfile(10);
+		profile.recordPrepared("select 1");
+		profile.invalidate();
+
+		profile.prime(() -> {
+			if (opened.get() == 2) {
+				throw new IllegalStateException("pool exhausted");
+			}
+			return connection();
+		}, 4).get(5, TimeUnit.SECONDS);
+
+		assertThat(opened).hasValue(2);
+		assertThat(closed).hasValue(2);
+	}
+
+	@Test
+	void skipsPrimingWithoutCapturedStatements() {
+
+		MySqlPerformanceProfile profile = new MySqlPerformanceProfile(10);
+
+		assertThat(profile.prime(this::connection, 2)).isCompleted();
+		assertThat(opened).hasValue(0);
+	}
+
+	@Test
+	void awaitPrimingReturnsOnceConnectionsAreReleased() throws Exception {
+
+		MySqlPerformanceProfile profile = new MySqlPerformanceProfile(10);
+		profile.recordPrepared("select 1");
+		profile.invalidate();
+
+		profile.prime(this::connection, 2);
+		profile.invalidate();
+		profile.awaitPriming(5_000);
+
+		assertThat(closed).hasValue(opened.get());
+	}
+
+	private Connection connection() throws Exception {
+
+		opened.incrementAndGet();
+		return new InstrumentedConnection(dataSource.getConnection(), null, primed::add, closed::incrementAndGet);
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.crac.jpacracdemo;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Christoph Strobl
+ * @since 2023/06
+ */
+class TimeOrderedIdTests {
+
+	static final long EPOCH_MILLIS = 1_686_000_000_000L;
+
+	@Test
+	void usesVersion7Layout() {
+
+		UUID id = TimeOrderedId.Generator.next(new AtomicLong(), EPOCH_MILLIS);
+
+		assertThat(id.version()).isEqualTo(7);
+		assertThat(id.variant()).isEqualTo(2);
+		assertThat(id.getMostSignificantBits() >>> 16).isEqualTo(EPOCH_MILLIS);
+		assertThat(id.getMostSignificantBits() & 0xFFFL).isZero();
+	}
+
+	@Test
+	void countsUpWithinSameMillisecond() {
+
+		AtomicLong state = new AtomicLong();
+		TimeOrderedId.Generator.next(state, EPOCH_MILLIS);
+		UUID id = TimeOrderedId.Generator.next(state, EPOCH_MILLIS);
+
+		assertThat(id.getMostSignificantBits() >>> 16).isEqualTo(EPOCH_MILLIS);
+		assertThat(id.getMostSignificantBits() & 0xFFFL).isOne();
+	}
+
+	@Test
+	void staysMonotonicWhenCounterOverflows() {
+
+		AtomicLong state = new AtomicLong();
+		UUID previous = TimeOrderedId.Generator.next(state, EPOCH_MILLIS);
+
+		for (int i = 0; i < 3 * 4096; i++) {
+
+			UUID id = TimeOrderedId.Generator.next(state, EPOCH_MILLIS);
+
+			assertThat(id.version()).isEqualTo(7);
+			assertThat(Long.compareUnsigned(id.getMostSignificantBits(), previous.getMostSignificantBits())).isPositive();
+			previous = id;
+		}
+
+		assertThat(previous.getMostSignificantBits() >>> 16).isEqualTo(EPOCH_MILLIS + 3);
+	}
+
+	@Test
+	void staysMonotonicWhenClockGoesBackwards() {
+
+		AtomicLong state = new AtomicLong();
+		UUID first = TimeOrderedId.Generator.next(state, EPOCH_MILLIS);
+		UUID second = TimeOrderedId.Generator.next(state, EPOCH_MILLIS - 1_000);
+
+		assertThat(Long.compareUnsigned(second.getMostSignificantBits(), first.getMostSignificantBits())).isPositive();
+	}
+}